@@ -0,0 +1,70 @@
+#!/bin/bash
+
+#======================================================================
+# Runs the same route mix against the lambda api or the standalone server
+# and prints throughput and latency percentiles. Needs hey on the path.
+# hey sends from one address, so switch the rate limiter off for the mix:
+#
+#   sam local start-api --env-vars local/loadtest-env.json
+#   ./loadtest.sh http://127.0.0.1:3000
+#
+#   java -jar target/hi-low-backend-0.0.1-SNAPSHOT.jar --spring.profiles.active=server,loadtest
+#   ./loadtest.sh http://127.0.0.1:8080
+#
+# MODE=overload keeps the limiter on, see below.
+#======================================================================
+
+set -e
+base_url=${1:?usage: ./loadtest.sh <base url> [bet id]}
+bet_id=${2:-1000}
+duration=${DURATION:-30s}
+concurrency=${CONCURRENCY:-50}
+
+# MODE=overload: one abusive identity floods GET /bets while well behaved identities poll at a low rate.
+# Needs per identity limits, so run it against the server started with
+#   --spring.profiles.active=server --hilow.rate-limit.identity-header=X-Identity-Id
+# Compare the well behaved p99 with and without the flood.
+if [[ $MODE == 'overload' ]]; then
+    identity_header=${IDENTITY_HEADER:-X-Identity-Id}
+    callers=${CALLERS:-10}
+    out_dir=$(mktemp -d)
+    hey -z "$duration" -c "$concurrency" -H "$identity_header: abuser" "$base_url/bets?page=0&size=20" \
+        > "$out_dir/abuser" &
+    for ((i = 0; i < callers; i++)); do
+        hey -z "$duration" -c 1 -q 2 -H "$identity_header: caller-$i" "$base_url/bets?page=0&size=20" \
+            > "$out_dir/caller-$i" &
+    done
+    wait
+
+    printf "\nabuser\n"
+    grep -E "Requests/sec|99%|\[[0-9]+\]" "$out_dir/abuser"
+    printf "\nwell behaved callers, p99 each\n"
+    grep -h -E "99%" "$out_dir"/caller-*
+    grep -h -E "\[[0-9]+\]" "$out_dir"/caller-* | sort | uniq -c
+    rm -rf "$out_dir"
+    exit
+fi
+
+# hot reads dominate, matching production traffic
+routes=(
+    "GET /bets?page=0&size=20 8"
+    "GET /bets/$bet_id/comments 8"
+    "GET /bets/$bet_id/comments?since=&limit=50 2"
+    "GET /users?page=0&size=20 2"
+)
+
+out_dir=$(mktemp -d)
+i=0
+for route in "${routes[@]}"; do
+    read -r method path weight <<< "$route"
+    echo "$method $path" > "$out_dir/$i"
+    hey -z "$duration" -c $((concurrency * weight / 20 + 1)) -m "$method" "$base_url$path" >> "$out_dir/$i" &
+    i=$((i + 1))
+done
+wait
+
+for result in "$out_dir"/*; do
+    printf "\n"
+    grep -E "^(GET|POST|PUT|DELETE) |Requests/sec|50%|99%|\[[0-9]+\]" "$result"
+done
+rm -rf "$out_dir"
@@ -0,0 +1,38 @@
+package com.hilow.hilowbackend;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.hilow.hilowbackend.service.BetArchiveService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Scheduled entry point that moves completed bets into the archive tables. Runs until the batches dry up or the
+ * invocation is close to timing out, the next invocation resumes from there.
+ */
+public class ArchiveLambdaHandler implements RequestStreamHandler {
+    // leave room to commit the last batch before lambda kills us
+    private static final long SAFETY_MARGIN_MILLIS = 10_000;
+
+    private static ConfigurableApplicationContext context;
+    static {
+        context = new SpringApplicationBuilder(HiLowBackendApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+    }
+
+    @Override
+    public void handleRequest(InputStream inputStream, OutputStream outputStream, Context lambdaContext)
+            throws IOException {
+        long deadline = System.currentTimeMillis() + lambdaContext.getRemainingTimeInMillis() - SAFETY_MARGIN_MILLIS;
+        int archived = context.getBean(BetArchiveService.class).archiveCompletedBets(deadline);
+        outputStream.write(("{\"archived\":" + archived + "}").getBytes(StandardCharsets.UTF_8));
+    }
+}
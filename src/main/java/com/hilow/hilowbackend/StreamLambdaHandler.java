@@ -8,6 +8,7 @@ import com.amazonaws.serverless.proxy.spring.SpringBootLambdaContainerHandler;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import com.hilow.hilowbackend.filter.CognitoIdentityFilter;
+import com.hilow.hilowbackend.filter.RateLimitFilter;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.FilterRegistration;
@@ -28,6 +29,16 @@ public class StreamLambdaHandler implements RequestStreamHandler {
             handler.onStartup(servletContext -> {
                 FilterRegistration.Dynamic registration = servletContext.addFilter("CognitoIdentityFilter", CognitoIdentityFilter.class);
                 registration.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+
+                // admission control runs after the identity is known and before any controller takes a connection
+                if ("false".equalsIgnoreCase(System.getenv("RATE_LIMIT_ENABLED"))) {
+                    return;
+                }
+                FilterRegistration.Dynamic rateLimit = servletContext.addFilter("RateLimitFilter", RateLimitFilter.class);
+                setFromEnv(rateLimit, RateLimitFilter.ROUTES_PARAM, "RATE_LIMIT_ROUTES");
+                setFromEnv(rateLimit, RateLimitFilter.DEFAULT_LIMIT_PARAM, "RATE_LIMIT_DEFAULT");
+                setFromEnv(rateLimit, RateLimitFilter.MAX_CONCURRENT_PARAM, "RATE_LIMIT_MAX_CONCURRENT");
+                rateLimit.addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
             });
         } catch (ContainerInitializationException e) {
             // if we fail here. We re-throw the exception to force another cold start
@@ -46,4 +57,11 @@ public class StreamLambdaHandler implements RequestStreamHandler {
             throws IOException {
         handler.proxyStream(inputStream, outputStream, context);
     }
+
+    private static void setFromEnv(FilterRegistration.Dynamic registration, String param, String env) {
+        String value = System.getenv(env);
+        if (value != null) {
+            registration.setInitParameter(param, value);
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.hilow.hilowbackend.config;
+
+import com.hilow.hilowbackend.filter.RateLimitFilter;
+import com.hilow.hilowbackend.filter.RequestCoalescingFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Filters for the standalone server, which runs the same controllers as {@link com.hilow.hilowbackend.StreamLambdaHandler}
+ * on an embedded Undertow. There is no API Gateway in front, so the Cognito filter is not registered. Rate limits
+ * are per caller only when a trusted proxy sets the header named by {@code hilow.rate-limit.identity-header};
+ * otherwise callers share a bucket per client address. X-Forwarded-For is only believed from the addresses in
+ * {@code hilow.rate-limit.trusted-proxies}.
+ */
+@Configuration
+@Profile("server")
+public class ServerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "hilow.rate-limit.enabled", matchIfMissing = true)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            @Value("${hilow.rate-limit.identity-header:}") String identityHeader,
+            @Value("${hilow.rate-limit.trusted-proxies:}") String trustedProxies,
+            @Value("${hilow.rate-limit.routes:}") String routes,
+            @Value("${hilow.rate-limit.default:10/20}") String defaultLimit,
+            @Value("${hilow.rate-limit.max-concurrent:64}") String maxConcurrent) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(new RateLimitFilter());
+        registration.addInitParameter(RateLimitFilter.ROUTES_PARAM, routes);
+        registration.addInitParameter(RateLimitFilter.DEFAULT_LIMIT_PARAM, defaultLimit);
+        registration.addInitParameter(RateLimitFilter.MAX_CONCURRENT_PARAM, maxConcurrent);
+        registration.addInitParameter(RateLimitFilter.IDENTITY_HEADER_PARAM, identityHeader);
+        registration.addInitParameter(RateLimitFilter.TRUSTED_PROXIES_PARAM, trustedProxies);
+        registration.addUrlPatterns("/*");
+        registration.setOrder(1);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestCoalescingFilter> requestCoalescingFilter(
+            @Value("${hilow.coalesce.routes:/bets,/bets/*/comments}") String routes,
+            @Value("${hilow.coalesce.wait-millis:2000}") String waitMillis) {
+        FilterRegistrationBean<RequestCoalescingFilter> registration =
+                new FilterRegistrationBean<>(new RequestCoalescingFilter());
+        registration.addInitParameter(RequestCoalescingFilter.ROUTES_PARAM, routes);
+        registration.addInitParameter(RequestCoalescingFilter.WAIT_MILLIS_PARAM, waitMillis);
+        registration.addUrlPatterns("/*");
+        // after the rate limiter so followers still spend their own tokens, they give back the concurrency slot
+        registration.setOrder(2);
+        return registration;
+    }
+}
@@ -3,9 +3,10 @@ package com.hilow.hilowbackend.controller;
 import com.hilow.hilowbackend.exception.ResourceNotFoundException;
 import com.hilow.hilowbackend.model.Bet;
 import com.hilow.hilowbackend.repository.BetRepository;
+import com.hilow.hilowbackend.service.BetArchiveService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,8 +18,16 @@ public class BetController {
     @Autowired
     private BetRepository betRepository;
 
+    @Autowired
+    private BetArchiveService betArchiveService;
+
+    // archived reads come back as a slice without a total, hot reads keep their page totals
     @GetMapping("/bets")
-    public Page<Bet> getBets(Pageable pageable) {
+    public Slice<Bet> getBets(Pageable pageable,
+                              @RequestParam(defaultValue = "false") boolean archived) {
+        if (archived) {
+            return betArchiveService.findArchivedBets(pageable);
+        }
         return betRepository.findAll(pageable);
     }
 
@@ -35,6 +44,9 @@ public class BetController {
                 .map(bet -> {
                     bet.setTitle(betRequest.getTitle());
                     bet.setDescription(betRequest.getDescription());
+                    if (betRequest.getIsComplete() != null) {
+                        bet.setIsComplete(betRequest.getIsComplete());
+                    }
                     return betRepository.save(bet);
                 }).orElseThrow(() -> new ResourceNotFoundException("Bet not found with id " + betId));
     }
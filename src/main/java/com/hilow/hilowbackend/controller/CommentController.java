@@ -1,18 +1,26 @@
 package com.hilow.hilowbackend.controller;
 
+import com.hilow.hilowbackend.exception.BadRequestException;
 import com.hilow.hilowbackend.exception.ResourceNotFoundException;
 import com.hilow.hilowbackend.model.Comment;
+import com.hilow.hilowbackend.model.CommentSyncPage;
 import com.hilow.hilowbackend.repository.BetRepository;
 import com.hilow.hilowbackend.repository.CommentRepository;
+import com.hilow.hilowbackend.service.BetArchiveService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 @RestController
 public class CommentController {
+    static final int DEFAULT_SYNC_LIMIT = 50;
+    static final int MAX_SYNC_LIMIT = 200;
+    static final long SYNC_OVERLAP_MILLIS = 5_000;
 
     @Autowired
     private CommentRepository commentRepository;
@@ -20,11 +28,79 @@ public class CommentController {
     @Autowired
     private BetRepository betRepository;
 
+    @Autowired
+    private BetArchiveService betArchiveService;
+
     @GetMapping("/bets/{betId}/comments")
-    public List<Comment> getCommentsByBetId(@PathVariable Long betId) {
+    public List<Comment> getCommentsByBetId(@PathVariable Long betId,
+                                            @RequestParam(defaultValue = "false") boolean archived) {
+        if (archived) {
+            return betArchiveService.findArchivedComments(betId);
+        }
         return commentRepository.findByBetId(betId);
     }
 
+    /**
+     * Incremental sync. Returns comments changed after the {@code since} cursor ordered by (updated_at, id),
+     * plus tombstones for comments deleted after it. Start with an empty {@code since}.
+     *
+     * updated_at comes from the writer's clock when it saves, not from the commit, so a slow transaction or a skewed
+     * container can commit a row behind a cursor a client already holds. To cover that, every page also re-sends
+     * every row from the {@link #SYNC_OVERLAP_MILLIS} before the cursor, on top of {@code limit}, and clients must
+     * dedupe by id. Rows that land further behind than the overlap are still missed; a full GET without
+     * {@code since} recovers them.
+     */
+    @GetMapping(value = "/bets/{betId}/comments", params = "since")
+    public CommentSyncPage syncComments(@PathVariable Long betId,
+                                        @RequestParam String since,
+                                        @RequestParam(required = false) Integer limit) {
+        if(!betRepository.existsById(betId)) {
+            throw new ResourceNotFoundException("Bet not found with id " + betId);
+        }
+
+        int pageSize = limit == null ? DEFAULT_SYNC_LIMIT : limit;
+        if(pageSize < 1 || pageSize > MAX_SYNC_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_SYNC_LIMIT);
+        }
+
+        List<Comment> page;
+        List<Comment> changed = new ArrayList<>();
+        if(since.isEmpty()) {
+            page = commentRepository.findSyncPage(betId, pageSize);
+        } else {
+            Date cursorUpdatedAt;
+            Long cursorId;
+            String[] cursor = since.split("_", 2);
+            try {
+                cursorUpdatedAt = new Date(Long.parseLong(cursor[0]));
+                cursorId = Long.parseLong(cursor[1]);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new BadRequestException("Invalid cursor " + since, e);
+            }
+            Date overlapFrom = new Date(cursorUpdatedAt.getTime() - SYNC_OVERLAP_MILLIS);
+            changed.addAll(commentRepository.findSyncOverlap(betId, overlapFrom, cursorUpdatedAt, cursorId));
+            page = commentRepository.findSyncPageAfter(betId, cursorUpdatedAt, cursorId, pageSize);
+        }
+        changed.addAll(page);
+
+        List<Comment> comments = new ArrayList<>();
+        List<CommentSyncPage.Tombstone> tombstones = new ArrayList<>();
+        for (Comment comment : changed) {
+            if (Boolean.TRUE.equals(comment.getIsDeleted())) {
+                tombstones.add(new CommentSyncPage.Tombstone(comment.getId(), comment.getXref(), comment.getUpdatedAt()));
+            } else {
+                comments.add(comment);
+            }
+        }
+
+        String nextCursor = since;
+        if (!page.isEmpty()) {
+            Comment last = page.get(page.size() - 1);
+            nextCursor = last.getUpdatedAt().getTime() + "_" + last.getId();
+        }
+        return new CommentSyncPage(comments, tombstones, nextCursor, page.size() == pageSize);
+    }
+
     @PostMapping("/bets/{betId}/comments")
     public Comment addComment(@PathVariable Long betId,
                             @Valid @RequestBody Comment comment) {
@@ -44,6 +120,7 @@ public class CommentController {
         }
 
         return commentRepository.findById(commentId)
+                .filter(comment -> !Boolean.TRUE.equals(comment.getIsDeleted()))
                 .map(comment -> {
                     comment.setText(commentRequest.getText());
                     return commentRepository.save(comment);
@@ -58,8 +135,12 @@ public class CommentController {
         }
 
         return commentRepository.findById(commentId)
+                .filter(comment -> !Boolean.TRUE.equals(comment.getIsDeleted()))
                 .map(comment -> {
-                    commentRepository.delete(comment);
+                    // soft delete so syncing clients see a tombstone
+                    comment.setIsDeleted(true);
+                    comment.setText(null);
+                    commentRepository.save(comment);
                     return ResponseEntity.ok().build();
                 }).orElseThrow(() -> new ResourceNotFoundException("Comment not found with id " + commentId));
 
@@ -40,16 +40,19 @@ public class CognitoIdentityFilter implements Filter {
         if (apiGwContext == null) {
             log.warn("API Gateway context is null");
             filterChain.doFilter(servletRequest, servletResponse);
+            return;
         }
         if (!AwsProxyRequestContext.class.isAssignableFrom(apiGwContext.getClass())) {
             log.warn("API Gateway context object is not of valid type");
             filterChain.doFilter(servletRequest, servletResponse);
+            return;
         }
 
         AwsProxyRequestContext ctx = (AwsProxyRequestContext)apiGwContext;
         if (ctx.getIdentity() == null) {
             log.warn("Identity context is null");
             filterChain.doFilter(servletRequest, servletResponse);
+            return;
         }
         String cognitoIdentityId = ctx.getIdentity().getCognitoIdentityId();
         if (cognitoIdentityId == null || "".equals(cognitoIdentityId.trim())) {
@@ -0,0 +1,41 @@
+package com.hilow.hilowbackend.filter;
+
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * The in-flight slot {@link RateLimitFilter} holds for a request, exposed as the {@link #ATTRIBUTE} request attribute
+ * so filters further down can hand it back while the request does no work of its own, see
+ * {@link RequestCoalescingFilter}. Used by the request's own thread only.
+ */
+public class ConcurrencyPermit {
+    public static final String ATTRIBUTE = ConcurrencyPermit.class.getName();
+
+    private final Semaphore semaphore;
+    private boolean held = true;
+
+    ConcurrencyPermit(Semaphore semaphore) {
+        this.semaphore = semaphore;
+    }
+
+    /**
+     * Gives the slot back. Safe to call more than once.
+     */
+    public void release() {
+        if (held) {
+            held = false;
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Takes a slot again after {@link #release()}, without waiting.
+     * @return false when the cap has been reached meanwhile
+     */
+    public boolean tryReacquire() {
+        if (!held) {
+            held = semaphore.tryAcquire();
+        }
+        return held;
+    }
+}
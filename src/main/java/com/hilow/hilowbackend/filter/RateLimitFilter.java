@@ -0,0 +1,327 @@
+package com.hilow.hilowbackend.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.AntPathMatcher;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+
+/**
+ * Admission control that runs after {@link CognitoIdentityFilter} and before any controller touches the database.
+ * Each Cognito identity gets a {@link TokenBucket} per route and is rejected with 429 once it is drained. A global
+ * concurrency cap rejects with 503 when too many requests are already in flight; the slot a request holds is
+ * published as a {@link ConcurrencyPermit} so requests that only wait can give it back.
+ *
+ * Configured through init parameters, see the constants below. Routes are matched in order, first match wins:
+ * <pre>GET /bets/*&#47;comments=20/40;POST /bets/**=2/5</pre>
+ * where each rule is {@code METHOD ant-pattern=permitsPerSecond/burst}.
+ *
+ * Without a Cognito identity the {@code identityHeader} init parameter, if set, names a request header holding the
+ * caller's identity. Only set it when a trusted proxy in front writes that header. Otherwise callers share one bucket
+ * per source address.
+ *
+ * The source address is the connection's peer. {@code X-Forwarded-For} is only read when the peer is listed in the
+ * {@code trustedProxies} init parameter (comma separated addresses or CIDR blocks); the client is then the rightmost
+ * hop that is not itself a trusted proxy, since every hop left of that was written by the client and can be forged.
+ */
+public class RateLimitFilter implements Filter {
+    public static final String ROUTES_PARAM = "routes";
+    public static final String DEFAULT_LIMIT_PARAM = "defaultLimit";
+    public static final String MAX_CONCURRENT_PARAM = "maxConcurrent";
+    public static final String MAX_TRACKED_PARAM = "maxTrackedBuckets";
+    public static final String IDENTITY_HEADER_PARAM = "identityHeader";
+    public static final String TRUSTED_PROXIES_PARAM = "trustedProxies";
+
+    static final String DEFAULT_LIMIT = "10/20";
+    static final int DEFAULT_MAX_CONCURRENT = 64;
+    static final int DEFAULT_MAX_TRACKED = 100_000;
+    static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private static Logger log = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final List<Route> routes = new ArrayList<>();
+    private Route defaultRoute;
+    private Semaphore inFlight;
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+    private int maxTracked;
+    private String identityHeader;
+    private final List<AddressRange> trustedProxies = new ArrayList<>();
+
+    @Override
+    public void init(FilterConfig filterConfig)
+            throws ServletException {
+        try {
+            String routeSpec = param(filterConfig, ROUTES_PARAM, "");
+            for (String rule : routeSpec.split(";")) {
+                if (!rule.trim().isEmpty()) {
+                    routes.add(Route.parse(rule.trim()));
+                }
+            }
+            defaultRoute = Route.parse("* /**=" + param(filterConfig, DEFAULT_LIMIT_PARAM, DEFAULT_LIMIT));
+            inFlight = new Semaphore(Integer.parseInt(
+                    param(filterConfig, MAX_CONCURRENT_PARAM, String.valueOf(DEFAULT_MAX_CONCURRENT))));
+            maxTracked = Integer.parseInt(param(filterConfig, MAX_TRACKED_PARAM, String.valueOf(DEFAULT_MAX_TRACKED)));
+            identityHeader = param(filterConfig, IDENTITY_HEADER_PARAM, null);
+            for (String proxy : param(filterConfig, TRUSTED_PROXIES_PARAM, "").split(",")) {
+                if (!proxy.trim().isEmpty()) {
+                    trustedProxies.add(AddressRange.parse(proxy.trim()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid rate limit configuration", e);
+        }
+    }
+
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        Route route = match(request);
+        String key = route.key + '|' + identity(request);
+        long waitNanos = buckets.computeIfAbsent(key, k -> route.newBucket()).tryAcquire();
+        if (buckets.size() > maxTracked) {
+            sweep();
+        }
+        if (waitNanos > 0) {
+            reject(response, TOO_MANY_REQUESTS, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            return;
+        }
+
+        if (!inFlight.tryAcquire()) {
+            log.warn("Shedding {} {}, concurrency cap reached", request.getMethod(), request.getRequestURI());
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1);
+            return;
+        }
+        ConcurrencyPermit permit = new ConcurrencyPermit(inFlight);
+        request.setAttribute(ConcurrencyPermit.ATTRIBUTE, permit);
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            permit.release();
+        }
+    }
+
+
+    @Override
+    public void destroy() {
+        buckets.clear();
+    }
+
+    private Route match(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        for (Route route : routes) {
+            if (route.matches(matcher, request.getMethod(), path)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    // drops full buckets. at most one thread sweeps per interval so a flood of identities can't make every request O(n)
+    private void sweep() {
+        long now = System.nanoTime();
+        long last = lastSweepNanos.get();
+        if (now - last < SWEEP_INTERVAL_NANOS || !lastSweepNanos.compareAndSet(last, now)) {
+            return;
+        }
+        buckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    private String identity(HttpServletRequest request) {
+        Object cognitoIdentityId = request.getAttribute(CognitoIdentityFilter.COGNITO_IDENTITY_ATTRIBUTE);
+        if (cognitoIdentityId != null && !"".equals(cognitoIdentityId.toString().trim())) {
+            return cognitoIdentityId.toString();
+        }
+        if (identityHeader != null) {
+            String headerIdentity = request.getHeader(identityHeader);
+            if (headerIdentity != null && !"".equals(headerIdentity.trim())) {
+                return "header:" + headerIdentity;
+            }
+        }
+        // unauthenticated callers share a bucket per source address
+        return "ip:" + clientAddress(request);
+    }
+
+    private String clientAddress(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrustedProxy(remoteAddr)) {
+            return remoteAddr;
+        }
+        List<String> hops = new ArrayList<>();
+        Enumeration<String> headers = request.getHeaders(FORWARDED_FOR_HEADER);
+        for (String header : headers == null ? Collections.<String>emptyList() : Collections.list(headers)) {
+            for (String hop : header.split(",")) {
+                hops.add(hop.trim());
+            }
+        }
+        // walk back from the hop our own proxy appended, stop at the first address it did not vouch for
+        for (int i = hops.size() - 1; i >= 0; i--) {
+            if (!isTrustedProxy(hops.get(i))) {
+                return hops.get(i).isEmpty() ? remoteAddr : hops.get(i);
+            }
+        }
+        return remoteAddr;
+    }
+
+    private boolean isTrustedProxy(String address) {
+        if (trustedProxies.isEmpty()) {
+            return false;
+        }
+        byte[] bytes = literal(address);
+        for (AddressRange range : trustedProxies) {
+            if (range.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // parses ip literals only, a forwarded hop must never trigger a dns lookup
+    private static byte[] literal(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+        if (IPV4_LITERAL.matcher(address).matches()) {
+            String[] octets = address.split("\\.");
+            byte[] bytes = new byte[4];
+            for (int i = 0; i < 4; i++) {
+                int octet = Integer.parseInt(octets[i]);
+                if (octet > 255) {
+                    return null;
+                }
+                bytes[i] = (byte) octet;
+            }
+            return bytes;
+        }
+        if (address.indexOf(':') < 0) {
+            return null;
+        }
+        try {
+            // brackets make the jdk parse an ipv6 literal or fail, it never resolves a bracketed host
+            return InetAddress.getByName("[" + address + "]").getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static void reject(HttpServletResponse response, int status, long retryAfterSeconds)
+            throws IOException {
+        response.setStatus(status);
+        response.setHeader("Retry-After", String.valueOf(retryAfterSeconds));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"status\":" + status + "}");
+    }
+
+    private static String param(FilterConfig filterConfig, String name, String defaultValue) {
+        String value = filterConfig.getInitParameter(name);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    private static class Route {
+        private final String key;
+        private final String method;
+        private final String pattern;
+        private final double permitsPerSecond;
+        private final int burst;
+
+        private Route(String key, String method, String pattern, double permitsPerSecond, int burst) {
+            this.key = key;
+            this.method = method;
+            this.pattern = pattern;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+
+        // METHOD pattern=permitsPerSecond/burst
+        static Route parse(String rule) {
+            String[] ruleParts = rule.split("=", 2);
+            String[] target = ruleParts[0].trim().split("\\s+", 2);
+            if (ruleParts.length != 2 || target.length != 2) {
+                throw new IllegalArgumentException("Invalid rate limit rule " + rule);
+            }
+            String[] limit = ruleParts[1].trim().split("/", 2);
+            double permitsPerSecond = Double.parseDouble(limit[0]);
+            int burst = limit.length == 2 ? Integer.parseInt(limit[1]) : (int) Math.ceil(permitsPerSecond);
+            if (permitsPerSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Invalid rate limit rule " + rule);
+            }
+            return new Route(ruleParts[0].trim(), target[0].toUpperCase(), target[1], permitsPerSecond, burst);
+        }
+
+        boolean matches(AntPathMatcher matcher, String requestMethod, String path) {
+            return ("*".equals(method) || method.equalsIgnoreCase(requestMethod)) && matcher.match(pattern, path);
+        }
+
+        TokenBucket newBucket() {
+            return new TokenBucket(permitsPerSecond, burst);
+        }
+    }
+
+    private static class AddressRange {
+        private final byte[] network;
+        private final int prefixLength;
+
+        private AddressRange(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        // address or address/prefixLength
+        static AddressRange parse(String spec) {
+            String[] parts = spec.split("/", 2);
+            byte[] network = literal(parts[0].trim());
+            if (network == null) {
+                throw new IllegalArgumentException("Invalid trusted proxy " + spec);
+            }
+            int prefixLength = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : network.length * 8;
+            if (prefixLength < 0 || prefixLength > network.length * 8) {
+                throw new IllegalArgumentException("Invalid trusted proxy " + spec);
+            }
+            return new AddressRange(network, prefixLength);
+        }
+
+        boolean contains(byte[] address) {
+            if (address == null || address.length != network.length) {
+                return false;
+            }
+            for (int bit = 0; bit < prefixLength; bit += 8) {
+                int mask = (0xff << (8 - Math.min(8, prefixLength - bit))) & 0xff;
+                if ((address[bit / 8] & mask) != (network[bit / 8] & mask)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
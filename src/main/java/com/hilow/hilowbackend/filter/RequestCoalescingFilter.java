@@ -0,0 +1,180 @@
+package com.hilow.hilowbackend.filter;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+
+/**
+ * Coalesces concurrent identical GET requests for hot read routes. The first request for a given url runs the
+ * controller, requests for the same url that arrive while it is in flight wait for it and are sent a copy of its
+ * response, so they share one database query. Nothing is cached once the first request completes.
+ *
+ * This gives up read-your-writes: a client that posts a comment and then reads the comments can join a read that
+ * started before its write and not see its own comment. Its next read will.
+ *
+ * A follower waits at most {@code waitMillis} for the leader, then runs the request itself, as it does when the
+ * leader fails. Followers hand their {@link ConcurrencyPermit} back while they wait, so only requests that run the
+ * query count against the concurrency cap; one that has to run on its own takes a slot again or is shed with 503.
+ *
+ * Only useful in a long running server, see {@link com.hilow.hilowbackend.config.ServerConfiguration}.
+ * Routes are set with the {@code routes} init parameter as a comma separated list of ant patterns.
+ */
+public class RequestCoalescingFilter implements Filter {
+    public static final String ROUTES_PARAM = "routes";
+    public static final String WAIT_MILLIS_PARAM = "waitMillis";
+
+    static final long DEFAULT_WAIT_MILLIS = 2_000;
+
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final Map<String, CompletableFuture<CapturedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final List<String> routes = new ArrayList<>();
+    private long waitMillis = DEFAULT_WAIT_MILLIS;
+
+    @Override
+    public void init(FilterConfig filterConfig)
+            throws ServletException {
+        String routeSpec = filterConfig.getInitParameter(ROUTES_PARAM);
+        if (routeSpec != null) {
+            for (String route : routeSpec.split(",")) {
+                if (!route.trim().isEmpty()) {
+                    routes.add(route.trim());
+                }
+            }
+        }
+        String wait = filterConfig.getInitParameter(WAIT_MILLIS_PARAM);
+        if (wait != null && !wait.trim().isEmpty()) {
+            try {
+                waitMillis = Long.parseLong(wait.trim());
+            } catch (NumberFormatException e) {
+                throw new ServletException("Invalid " + WAIT_MILLIS_PARAM + " " + wait, e);
+            }
+        }
+    }
+
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        if (!"GET".equals(request.getMethod()) || !isCoalesced(request.getRequestURI())) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        String key = request.getQueryString() == null
+                ? request.getRequestURI()
+                : request.getRequestURI() + '?' + request.getQueryString();
+        CompletableFuture<CapturedResponse> leader = new CompletableFuture<>();
+        CompletableFuture<CapturedResponse> existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            ConcurrencyPermit permit = (ConcurrencyPermit) request.getAttribute(ConcurrencyPermit.ATTRIBUTE);
+            if (permit != null) {
+                permit.release();
+            }
+            CapturedResponse shared = await(existing);
+            if (shared != null) {
+                shared.writeTo(response);
+                return;
+            }
+            // the leader failed or is too slow, run on our own
+            if (permit != null && !permit.tryReacquire()) {
+                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                response.setHeader("Retry-After", "1");
+                response.setContentType("application/json");
+                response.getWriter().write("{\"status\":" + HttpServletResponse.SC_SERVICE_UNAVAILABLE + "}");
+                return;
+            }
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(servletRequest, captured);
+            leader.complete(new CapturedResponse(captured));
+        } finally {
+            // no-op when the leader completed, otherwise releases the waiters to run on their own
+            leader.completeExceptionally(new ServletException("Coalesced request failed"));
+            inFlight.remove(key, leader);
+            captured.copyBodyToResponse();
+        }
+    }
+
+
+    @Override
+    public void destroy() {
+        inFlight.clear();
+    }
+
+    private boolean isCoalesced(String path) {
+        for (String route : routes) {
+            if (matcher.match(route, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private CapturedResponse await(CompletableFuture<CapturedResponse> future)
+            throws ServletException {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted waiting for coalesced request", e);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static class CapturedResponse {
+        private final int status;
+        private final String contentType;
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private final byte[] body;
+
+        CapturedResponse(ContentCachingResponseWrapper response) {
+            this.status = response.getStatus();
+            this.contentType = response.getContentType();
+            for (String name : response.getHeaderNames()) {
+                // content type and length are written from the captured body
+                if (!"Content-Type".equalsIgnoreCase(name) && !"Content-Length".equalsIgnoreCase(name)) {
+                    headers.put(name, new ArrayList<>(response.getHeaders(name)));
+                }
+            }
+            this.body = response.getContentAsByteArray();
+        }
+
+        void writeTo(HttpServletResponse response)
+                throws IOException {
+            response.setStatus(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.hilow.hilowbackend.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Implemented as a generic cell rate algorithm so the whole bucket state is a single
+ * "theoretical arrival time" that is advanced with compare-and-set instead of a lock.
+ */
+public class TokenBucket {
+    private final long emissionIntervalNanos; // time to refill one token
+    private final long burstToleranceNanos; // how far ahead of now the arrival time may run
+
+    private final AtomicLong theoreticalArrivalNanos;
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes one token if available.
+     * @return 0 if a token was taken, otherwise the nanos until one will be available
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrivalNanos.get();
+            long start = tat - now < 0 ? now : tat;
+            long wait = start - now - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(tat, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A full bucket holds no state worth keeping and can be dropped.
+     */
+    public boolean isFull() {
+        return theoreticalArrivalNanos.get() - System.nanoTime() <= 0;
+    }
+}
@@ -15,7 +15,7 @@ import java.util.Date;
 @MappedSuperclass
 @EntityListeners(AuditingEntityListener.class)
 @JsonIgnoreProperties(
-        value = {"createdAt", "updatedAt"},
+        value = {"createdAt", "updatedAt", "hibernateLazyInitializer"},
         allowGetters = true
 )
 public abstract class AuditModel implements Serializable {
@@ -28,4 +28,10 @@ public abstract class AuditModel implements Serializable {
     @Column(name = "updated_at", nullable = false)
     @LastModifiedDate
     private Date updatedAt = new Date();
+
+    // jpa auditing is disabled, so bump updatedAt ourselves. comment sync cursors rely on it
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = new Date();
+    }
 }
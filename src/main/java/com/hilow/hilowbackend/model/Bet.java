@@ -1,6 +1,8 @@
 package com.hilow.hilowbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.*;
+import org.hibernate.annotations.Where;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -39,6 +41,7 @@ public class Bet extends AuditModel {
     private String description;
 
     @ManyToMany
+    @JsonIgnoreProperties("bets") // user.bets points back at this bet
     @JoinTable(
             name = "bet_participants",
             joinColumns = @JoinColumn(name = "bet_id"),
@@ -70,6 +73,7 @@ public class Bet extends AuditModel {
     private String resultXref; // url, or video posting
 
     @OneToMany(mappedBy = "bet")
+    @Where(clause = "is_deleted is null or is_deleted = false")
     private List<Comment> comments = new ArrayList<>();
 
     @Column
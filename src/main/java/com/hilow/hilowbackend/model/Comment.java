@@ -17,7 +17,10 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        // serves keyset paging for comment sync: where bet_id = ? and (updated_at, id) > (?, ?)
+        @Index(name = "comments_bet_id_updated_at_id_idx", columnList = "bet_id, updated_at, id")
+})
 public class Comment extends AuditModel {
     @Id
     @GeneratedValue(generator = "comment_generator")
@@ -39,4 +42,8 @@ public class Comment extends AuditModel {
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonIgnore
     private Bet bet;
+
+    @Column(columnDefinition = "boolean default false")
+    @JsonIgnore
+    private Boolean isDeleted = false; // soft delete, kept as a tombstone for comment sync
 }
@@ -0,0 +1,33 @@
+package com.hilow.hilowbackend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * One page of an incremental comment sync. Pass {@code cursor} back as {@code since} to fetch the next page.
+ * Pages overlap a little, so apply comments and tombstones by id.
+ */
+@Getter
+@AllArgsConstructor
+public class CommentSyncPage {
+    private List<Comment> comments; // created or updated since the cursor, may repeat rows from just before it
+
+    private List<Tombstone> tombstones; // deleted since the cursor, may repeat rows from just before it
+
+    private String cursor; // position of the last row in this page, or the incoming cursor if the page is empty
+
+    private boolean hasMore; // page was full, fetch again with the new cursor
+
+    @Getter
+    @AllArgsConstructor
+    public static class Tombstone {
+        private Long id;
+
+        private String xref;
+
+        private Date deletedAt;
+    }
+}
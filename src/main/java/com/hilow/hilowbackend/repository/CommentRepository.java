@@ -2,10 +2,42 @@ package com.hilow.hilowbackend.repository;
 
 import com.hilow.hilowbackend.model.Comment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import javax.persistence.TemporalType;
+import java.util.Date;
 import java.util.List;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
-    List<Comment> findByBetId(Long betId);
+    @Query("select c from Comment c where c.bet.id = :betId and (c.isDeleted is null or c.isDeleted = false)")
+    List<Comment> findByBetId(@Param("betId") Long betId);
+
+    // sync queries include soft deleted comments so callers can emit tombstones
+    @Query(value = "select * from comments where bet_id = :betId order by updated_at, id limit :limit",
+            nativeQuery = true)
+    List<Comment> findSyncPage(@Param("betId") Long betId, @Param("limit") int limit);
+
+    // row value comparison so postgres range scans comments_bet_id_updated_at_id_idx starting at the cursor
+    @Query(value = "select * from comments where bet_id = :betId and (updated_at, id) > (:updatedAt, :id)"
+            + " order by updated_at, id limit :limit",
+            nativeQuery = true)
+    List<Comment> findSyncPageAfter(@Param("betId") Long betId,
+                                    @Param("updatedAt") @Temporal(TemporalType.TIMESTAMP) Date updatedAt,
+                                    @Param("id") Long id,
+                                    @Param("limit") int limit);
+
+    // rows at or just behind the cursor, re-sent in case they committed after the client read past them.
+    // no row limit, the time window bounds it and a cut-off here would silently drop rows
+    @Query(value = "select * from comments where bet_id = :betId"
+            + " and updated_at >= :from and (updated_at, id) <= (:updatedAt, :id)"
+            + " order by updated_at, id",
+            nativeQuery = true)
+    List<Comment> findSyncOverlap(@Param("betId") Long betId,
+                                  @Param("from") @Temporal(TemporalType.TIMESTAMP) Date from,
+                                  @Param("updatedAt") @Temporal(TemporalType.TIMESTAMP) Date updatedAt,
+                                  @Param("id") Long id);
 }
@@ -0,0 +1,299 @@
+package com.hilow.hilowbackend.service;
+
+import com.hilow.hilowbackend.model.Bet;
+import com.hilow.hilowbackend.model.Comment;
+import com.hilow.hilowbackend.model.User;
+import com.hilow.hilowbackend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Moves completed bets, with their comments and participants, out of the hot tables into *_archive tables so the
+ * hot working set and its indexes stay small. Work is done in batches that each commit on their own and are safe to
+ * repeat, so an interrupted run just picks up where it stopped on the next one.
+ *
+ * The archive tables are created and brought in line with the hot tables at the start of each run, never from the
+ * API, so API cold starts do no DDL. Archived bets are read back as detached {@link Bet}s assembled from the archive
+ * tables, with the same JSON shape as hot bets.
+ */
+@Service
+public class BetArchiveService {
+
+    private static Logger log = LoggerFactory.getLogger(BetArchiveService.class);
+
+    private static final String BET_COLUMNS = "id, xref, creator_id, title, description, conditions, punishment,"
+            + " conditions_deadline, punishment_deadline, result_xref, is_complete, created_at, updated_at";
+    private static final String COMMENT_COLUMNS = "id, xref, text, bet_id, created_at, updated_at";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final UserRepository userRepository;
+
+    @Value("${hilow.archive.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${hilow.archive.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean archiveTablesExist;
+
+    public BetArchiveService(TransactionTemplate transactionTemplate, UserRepository userRepository) {
+        this.transactionTemplate = transactionTemplate;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Archives batches until nothing is left or the deadline passes.
+     * @return number of bets archived
+     */
+    public int archiveCompletedBets(long deadlineMillis) {
+        Map<String, String> columns = transactionTemplate.execute(status -> prepareArchiveTables());
+        Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays));
+        int total = 0;
+        int archived;
+        do {
+            archived = transactionTemplate.execute(status -> archiveBatch(cutoff, columns));
+            total += archived;
+        } while (archived == batchSize && System.currentTimeMillis() < deadlineMillis);
+        log.info("Archived {} completed bets last updated before {}", total, cutoff);
+        return total;
+    }
+
+    /**
+     * A slice of archived bets, newest first. Sorting in the pageable is ignored. There is no total, counting the
+     * whole archive on every read costs more than the page itself; one extra row tells whether there is a next slice.
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public Slice<Bet> findArchivedBets(Pageable pageable) {
+        if (!archiveTablesExist()) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "select " + BET_COLUMNS + " from bets_archive order by id desc limit :limit offset :offset")
+                .setParameter("limit", pageable.getPageSize() + 1)
+                .setParameter("offset", pageable.getOffset())
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        if (hasNext) {
+            rows = rows.subList(0, pageable.getPageSize());
+        }
+        if (rows.isEmpty()) {
+            return new SliceImpl<>(Collections.emptyList(), pageable, false);
+        }
+
+        Map<Long, Bet> bets = new LinkedHashMap<>();
+        Map<Long, Long> creatorIds = new HashMap<>();
+        for (Object[] row : rows) {
+            Bet bet = new Bet();
+            bet.setId(toLong(row[0]));
+            bet.setXref((String) row[1]);
+            bet.setTitle((String) row[3]);
+            bet.setDescription((String) row[4]);
+            bet.setConditions((String) row[5]);
+            bet.setPunishment((String) row[6]);
+            bet.setConditionsDeadline((Date) row[7]);
+            bet.setPunishmentDeadline((Date) row[8]);
+            bet.setResultXref((String) row[9]);
+            bet.setIsComplete((Boolean) row[10]);
+            bet.setCreatedAt((Date) row[11]);
+            bet.setUpdatedAt((Date) row[12]);
+            bet.setParticipants(new HashSet<>());
+            bet.setComments(new ArrayList<>());
+            bets.put(bet.getId(), bet);
+            creatorIds.put(bet.getId(), toLong(row[2]));
+        }
+        List<Long> betIds = new ArrayList<>(bets.keySet());
+
+        List<Object[]> participantRows = entityManager.createNativeQuery(
+                "select bet_id, user_id from bet_participants_archive where bet_id in (:ids)")
+                .setParameter("ids", betIds)
+                .getResultList();
+
+        // users are not archived, creators and participants come from the hot table in one lookup
+        Set<Long> userIds = new HashSet<>(creatorIds.values());
+        participantRows.forEach(row -> userIds.add(toLong(row[1])));
+        Map<Long, User> users = userRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(User::getId, user -> user));
+
+        creatorIds.forEach((betId, userId) -> bets.get(betId).setCreator(users.get(userId)));
+        for (Object[] row : participantRows) {
+            User participant = users.get(toLong(row[1]));
+            if (participant != null) {
+                bets.get(toLong(row[0])).getParticipants().add(participant);
+            }
+        }
+        for (Comment comment : loadArchivedComments(betIds)) {
+            bets.get(comment.getBet().getId()).getComments().add(comment);
+        }
+        return new SliceImpl<>(new ArrayList<>(bets.values()), pageable, hasNext);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Comment> findArchivedComments(Long betId) {
+        if (!archiveTablesExist()) {
+            return Collections.emptyList();
+        }
+        return loadArchivedComments(Collections.singletonList(betId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Comment> loadArchivedComments(List<Long> betIds) {
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "select " + COMMENT_COLUMNS + " from comments_archive"
+                        + " where bet_id in (:ids) and (is_deleted is null or is_deleted = false) order by id")
+                .setParameter("ids", betIds)
+                .getResultList();
+        List<Comment> comments = new ArrayList<>();
+        for (Object[] row : rows) {
+            Bet bet = new Bet();
+            bet.setId(toLong(row[3]));
+            Comment comment = new Comment();
+            comment.setId(toLong(row[0]));
+            comment.setXref((String) row[1]);
+            comment.setText((String) row[2]);
+            comment.setBet(bet);
+            comment.setCreatedAt((Date) row[4]);
+            comment.setUpdatedAt((Date) row[5]);
+            comments.add(comment);
+        }
+        return comments;
+    }
+
+    // only remembers success, the archive job may create the tables after we started
+    private boolean archiveTablesExist() {
+        if (!archiveTablesExist) {
+            archiveTablesExist = Boolean.TRUE.equals(entityManager.createNativeQuery(
+                    "select to_regclass('bets_archive') is not null"
+                            + " and to_regclass('comments_archive') is not null"
+                            + " and to_regclass('bet_participants_archive') is not null")
+                    .getSingleResult());
+        }
+        return archiveTablesExist;
+    }
+
+    /**
+     * Creates missing archive tables and adds hot columns the archive tables lack, so archive inserts never drift
+     * from the hot schema that hibernate keeps updating.
+     * @return column list to copy, by hot table
+     */
+    private Map<String, String> prepareArchiveTables() {
+        // copy column shape only. the hot unique constraints and foreign keys do not apply to history
+        execute("create table if not exists bets_archive (like bets including defaults, primary key (id))");
+        execute("create table if not exists comments_archive (like comments including defaults, primary key (id))");
+        execute("create index if not exists comments_archive_bet_id_idx on comments_archive (bet_id)");
+        execute("create table if not exists bet_participants_archive"
+                + " (like bet_participants including defaults, primary key (bet_id, user_id))");
+
+        Map<String, String> columns = new HashMap<>();
+        columns.put("bets", reconcileColumns("bets", "bets_archive"));
+        columns.put("comments", reconcileColumns("comments", "comments_archive"));
+        columns.put("bet_participants", reconcileColumns("bet_participants", "bet_participants_archive"));
+        return columns;
+    }
+
+    private String reconcileColumns(String hotTable, String archiveTable) {
+        Map<String, String> hot = columnTypes(hotTable);
+        Map<String, String> archive = columnTypes(archiveTable);
+        List<String> quoted = new ArrayList<>();
+        for (Map.Entry<String, String> column : hot.entrySet()) {
+            String name = quote(column.getKey());
+            String archiveType = archive.get(column.getKey());
+            if (archiveType == null) {
+                log.info("Adding column {} {} to {}", column.getKey(), column.getValue(), archiveTable);
+                execute("alter table " + archiveTable + " add column " + name + " " + column.getValue());
+            } else if (!archiveType.equals(column.getValue())) {
+                throw new IllegalStateException("Column " + column.getKey() + " is " + column.getValue() + " in "
+                        + hotTable + " but " + archiveType + " in " + archiveTable + ", migrate the archive first");
+            }
+            quoted.add(name);
+        }
+        return String.join(", ", quoted);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> columnTypes(String table) {
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "select a.attname, format_type(a.atttypid, a.atttypmod) from pg_attribute a"
+                        + " where a.attrelid = cast(:table as regclass) and a.attnum > 0 and not a.attisdropped"
+                        + " order by a.attnum")
+                .setParameter("table", table)
+                .getResultList();
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            columns.put((String) row[0], (String) row[1]);
+        }
+        return columns;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int archiveBatch(Date cutoff, Map<String, String> columns) {
+        List<Long> betIds = ((List<Number>) entityManager.createNativeQuery(
+                "select id from bets where is_complete = true and updated_at < :cutoff order by id limit :limit"
+                        + " for update skip locked")
+                .setParameter("cutoff", cutoff)
+                .setParameter("limit", batchSize)
+                .getResultList())
+                .stream().map(Number::longValue).collect(Collectors.toList());
+        if (betIds.isEmpty()) {
+            return 0;
+        }
+
+        // copy first, then delete. on conflict keeps a repeated batch harmless
+        copy("bets", "bets_archive", columns.get("bets"), "id in (:ids)", "(id)", betIds);
+        copy("comments", "comments_archive", columns.get("comments"), "bet_id in (:ids)", "(id)", betIds);
+        copy("bet_participants", "bet_participants_archive", columns.get("bet_participants"),
+                "bet_id in (:ids)", "(bet_id, user_id)", betIds);
+
+        update("delete from bet_participants where bet_id in (:ids)", betIds);
+        update("delete from comments where bet_id in (:ids)", betIds);
+        update("delete from bets where id in (:ids)", betIds);
+        return betIds.size();
+    }
+
+    private void copy(String hotTable, String archiveTable, String columns, String where, String key,
+                      List<Long> betIds) {
+        update("insert into " + archiveTable + " (" + columns + ") select " + columns + " from " + hotTable
+                + " where " + where + " on conflict " + key + " do nothing", betIds);
+    }
+
+    private void update(String sql, List<Long> betIds) {
+        entityManager.createNativeQuery(sql).setParameter("ids", betIds).executeUpdate();
+    }
+
+    private void execute(String sql) {
+        entityManager.createNativeQuery(sql).executeUpdate();
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
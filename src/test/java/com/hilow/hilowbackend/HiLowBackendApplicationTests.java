@@ -1,12 +1,9 @@
 package com.hilow.hilowbackend;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.hilow.hilowbackend.model.Bet;
+import com.hilow.hilowbackend.model.Comment;
 import com.hilow.hilowbackend.model.User;
+import com.hilow.hilowbackend.service.BetArchiveService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -16,11 +13,13 @@ import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
-import java.io.IOException;
 import java.util.Date;
 
+import static com.hilow.hilowbackend.support.TestFixtures.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -29,14 +28,12 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @AutoConfigureMockMvc
 public class HiLowBackendApplicationTests {
 
-	private static final ObjectMapper MAPPER = new ObjectMapper()
-			.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
-			.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-			.registerModule(new JavaTimeModule());
-
 	@Autowired
 	private MockMvc mockMvc;
 
+	@Autowired
+	private BetArchiveService betArchiveService;
+
 	@Test
 	public void canCreateBet() throws Exception {
 		User user1 = new User();
@@ -74,21 +71,143 @@ public class HiLowBackendApplicationTests {
 				.andExpect(status().isOk());
 	}
 
-	public static String requestBody(Object request) {
-		try {
-			return MAPPER.writeValueAsString(request);
-		} catch (JsonProcessingException e) {
-			throw new RuntimeException(e);
-		}
+	@Test
+	public void deletedCommentsAreLeftOutOfBets() throws Exception {
+		String title = "deleted-" + System.currentTimeMillis();
+		Bet betEntity = createBet(mockMvc, title);
+		Comment kept = createComment(mockMvc, betEntity.getId(), "kept");
+		Comment deleted = createComment(mockMvc, betEntity.getId(), "deleted");
+		this.mockMvc.perform(delete("/bets/" + betEntity.getId() + "/comments/" + deleted.getId()))
+				.andExpect(status().isOk());
+
+		String bet = "$.content[?(@.title == '" + title + "')]";
+		this.mockMvc.perform(
+				get("/bets").param("size", "1000"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath(bet + ".comments[0].id").value(kept.getId().intValue()))
+				.andExpect(jsonPath(bet + ".comments[1]").doesNotExist());
 	}
 
-	public static <T> T parseResponse(MvcResult result, Class<T> responseClass) {
-		try {
-			String contentAsString = result.getResponse().getContentAsString();
-			return MAPPER.readValue(contentAsString, responseClass);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	@Test
+	public void canSyncCommentsSinceCursor() throws Exception {
+		Bet betEntity = createBet(mockMvc, "sync1");
+		String commentsUrl = "/bets/" + betEntity.getId() + "/comments";
+		Comment first = new Comment();
+		first.setText("first");
+		Comment firstEntity = parseResponse(this.mockMvc.perform(
+				post(commentsUrl)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(first)))
+				.andExpect(status().isOk())
+				.andReturn(), Comment.class);
+
+		MvcResult initial = this.mockMvc.perform(
+				get(commentsUrl).param("since", "").param("limit", "10"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.comments.length()").value(1))
+				.andExpect(jsonPath("$.comments[0].text").value("first"))
+				.andExpect(jsonPath("$.tombstones.length()").value(0))
+				.andReturn();
+		String cursor = MAPPER.readTree(initial.getResponse().getContentAsString()).get("cursor").asText();
+
+		Comment second = new Comment();
+		second.setText("second");
+		this.mockMvc.perform(
+				post(commentsUrl)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(second)))
+				.andExpect(status().isOk());
+		this.mockMvc.perform(delete(commentsUrl + "/" + firstEntity.getId()))
+				.andExpect(status().isOk());
+
+		MvcResult next = this.mockMvc.perform(
+				get(commentsUrl).param("since", cursor))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.comments.length()").value(1))
+				.andExpect(jsonPath("$.comments[0].text").value("second"))
+				.andExpect(jsonPath("$.tombstones[0].id").value(firstEntity.getId().intValue()))
+				.andReturn();
+		String nextCursor = MAPPER.readTree(next.getResponse().getContentAsString()).get("cursor").asText();
+
+		// rows just behind the cursor are re-sent for clients to dedupe, nothing new is after it
+		this.mockMvc.perform(
+				get(commentsUrl).param("since", nextCursor))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.comments[?(@.text == 'second')]").exists())
+				.andExpect(jsonPath("$.cursor").value(nextCursor))
+				.andExpect(jsonPath("$.hasMore").value(false));
+
+		this.mockMvc.perform(
+				get(commentsUrl).param("since", "not-a-cursor"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void syncOverlapIsNotCutByLimit() throws Exception {
+		Bet betEntity = createBet(mockMvc, "sync-overlap");
+		String commentsUrl = "/bets/" + betEntity.getId() + "/comments";
+		for (int i = 0; i < 3; i++) {
+			createComment(mockMvc, betEntity.getId(), "overlap" + i);
 		}
+
+		// walk to the last comment one row at a time, all three stay inside the overlap window
+		String cursor = "";
+		for (int i = 0; i < 3; i++) {
+			MvcResult page = this.mockMvc.perform(
+					get(commentsUrl).param("since", cursor).param("limit", "1"))
+					.andExpect(status().isOk())
+					.andReturn();
+			cursor = MAPPER.readTree(page.getResponse().getContentAsString()).get("cursor").asText();
+		}
+
+		this.mockMvc.perform(
+				get(commentsUrl).param("since", cursor).param("limit", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.comments.length()").value(3))
+				.andExpect(jsonPath("$.comments[0].text").value("overlap0"))
+				.andExpect(jsonPath("$.comments[2].text").value("overlap2"))
+				.andExpect(jsonPath("$.hasMore").value(false));
+	}
+
+	@Test
+	public void canReadArchivedBet() throws Exception {
+		String title = "archive-" + System.currentTimeMillis();
+		User participant = createUser(mockMvc, title + "-participant");
+		Bet betEntity = createBet(mockMvc, title, participant);
+		Comment comment = new Comment();
+		comment.setText(title + "-comment");
+		this.mockMvc.perform(
+				post("/bets/" + betEntity.getId() + "/comments")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(comment)))
+				.andExpect(status().isOk());
+		betEntity.setIsComplete(true);
+		this.mockMvc.perform(
+				put("/bets/" + betEntity.getId())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(betEntity)))
+				.andExpect(status().isOk());
+		Thread.sleep(10);
+
+		betArchiveService.archiveCompletedBets(Long.MAX_VALUE);
+
+		this.mockMvc.perform(
+				put("/bets/" + betEntity.getId())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(betEntity)))
+				.andExpect(status().isNotFound());
+		String archived = "$.content[?(@.title == '" + title + "')]";
+		this.mockMvc.perform(
+				get("/bets").param("archived", "true").param("size", "1000"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath(archived + ".creator.userName").value(title + "-user"))
+				.andExpect(jsonPath(archived + ".participants[0].userName").value(title + "-participant"))
+				.andExpect(jsonPath(archived + ".comments[0].text").value(title + "-comment"))
+				.andExpect(jsonPath(archived + ".isComplete").value(true));
+		this.mockMvc.perform(
+				get("/bets/" + betEntity.getId() + "/comments").param("archived", "true"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].text").value(title + "-comment"));
 	}
 
 }
@@ -0,0 +1,232 @@
+package com.hilow.hilowbackend;
+
+import com.hilow.hilowbackend.model.Bet;
+import com.hilow.hilowbackend.model.Comment;
+import com.hilow.hilowbackend.model.User;
+import com.hilow.hilowbackend.service.BetArchiveService;
+import com.hilow.hilowbackend.support.QueryRecorder;
+import com.hilow.hilowbackend.support.QueryRecordingConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.Date;
+
+import static com.hilow.hilowbackend.support.TestFixtures.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+
+/**
+ * Statement and row budgets per endpoint. A failing budget prints every statement the request issued.
+ * Page reads are measured with several rows on the page so per-row lazy loading blows the budget.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(QueryRecordingConfiguration.class)
+public class QueryBudgetTests {
+
+	private static final int PAGE_SIZE = 5;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private QueryRecorder queryRecorder;
+
+	@Autowired
+	private BetArchiveService betArchiveService;
+
+	@Test
+	public void betControllerStaysWithinBudget() throws Exception {
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			createBet(mockMvc, "budget-bet" + i);
+		}
+		Bet bet = createBet(mockMvc, "budget-bet");
+
+		// sequence, bet insert, one participant row
+		Bet newBet = new Bet();
+		newBet.setTitle("budget-new-bet");
+		newBet.setCreator(createUser(mockMvc, "budget-new-bet-user"));
+		newBet.setParticipants(Collections.singleton(createUser(mockMvc, "budget-new-bet-participant")));
+		newBet.setConditionsDeadline(new Date());
+		newBet.setPunishmentDeadline(new Date());
+		queryRecorder.record(() -> this.mockMvc.perform(
+				post("/bets")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(newBet)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(3);
+
+		// newest first so the page holds the bets created above, which have no participants or comments.
+		// page, count, then one batch each for creators, their bets, participants and comments.
+		// rows: the page, the count and one creator per bet
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get("/bets").param("size", String.valueOf(PAGE_SIZE)).param("sort", "id,desc"))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(6)
+				.assertRowsAtMost(2 * PAGE_SIZE + 1);
+
+		// load, update, then lazy loads for the response
+		bet.setDescription("updated");
+		queryRecorder.record(() -> this.mockMvc.perform(
+				put("/bets/" + bet.getId())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(bet)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(6)
+				.assertRowsAtMost(3);
+
+		queryRecorder.record(() -> this.mockMvc.perform(
+				delete("/bets/" + bet.getId()))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(4)
+				.assertRowsAtMost(2);
+	}
+
+	@Test
+	public void archivedReadsStayWithinBudget() throws Exception {
+		User participant = createUser(mockMvc, "budget-archive-participant");
+		Bet bet = createBet(mockMvc, "budget-archive", participant);
+		createComment(mockMvc, bet.getId(), "archived comment");
+		bet.setIsComplete(true);
+		this.mockMvc.perform(
+				put("/bets/" + bet.getId())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(bet)))
+				.andExpect(status().isOk());
+		Thread.sleep(10);
+		betArchiveService.archiveCompletedBets(Long.MAX_VALUE);
+
+		// table check on first use, the slice plus one look-ahead row, then one batch each for participants,
+		// users and comments. no count
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get("/bets").param("archived", "true").param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.content[0].id").value(bet.getId().intValue())))
+				.assertStatementsAtMost(5)
+				.assertRowsAtMost(1 + 2 + 1 + 2 + 1);
+
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get("/bets/" + bet.getId() + "/comments").param("archived", "true"))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(2)
+				.assertRowsAtMost(2);
+	}
+
+	@Test
+	public void commentControllerStaysWithinBudget() throws Exception {
+		Bet bet = createBet(mockMvc, "budget-comments");
+		String commentsUrl = "/bets/" + bet.getId() + "/comments";
+		Comment lastComment = null;
+		for (int i = 0; i < 3; i++) {
+			lastComment = createComment(mockMvc, bet.getId(), "comment" + i);
+		}
+
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get(commentsUrl))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(1)
+				.assertRowsAtMost(3);
+
+		// existence check plus one keyset page
+		MvcResult[] firstPage = new MvcResult[1];
+		queryRecorder.record(() -> firstPage[0] = this.mockMvc.perform(
+				get(commentsUrl).param("since", "").param("limit", "2"))
+				.andExpect(status().isOk())
+				.andReturn())
+				.assertStatementsAtMost(2)
+				.assertRowsAtMost(3);
+
+		// existence check, overlap behind the cursor, then the page after it
+		String cursor = MAPPER.readTree(firstPage[0].getResponse().getContentAsString()).get("cursor").asText();
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get(commentsUrl).param("since", cursor).param("limit", "2"))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(1 + 2 + 1);
+
+		// bet lookup, sequence, insert
+		Comment comment = new Comment();
+		comment.setText("budget");
+		queryRecorder.record(() -> this.mockMvc.perform(
+				post(commentsUrl)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(comment)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(3);
+
+		// existence check, load, update
+		String commentUrl = commentsUrl + "/" + lastComment.getId();
+		Comment edit = new Comment();
+		edit.setText("edited");
+		queryRecorder.record(() -> this.mockMvc.perform(
+				put(commentUrl)
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(edit)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(3);
+
+		// existence check, load, soft delete update
+		queryRecorder.record(() -> this.mockMvc.perform(
+				delete(commentUrl))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(3);
+	}
+
+	@Test
+	public void userControllerStaysWithinBudget() throws Exception {
+		for (int i = 0; i < PAGE_SIZE; i++) {
+			createUser(mockMvc, "budget-user" + i);
+		}
+
+		// page, count, then one batch for the bets of every user on the page
+		queryRecorder.record(() -> this.mockMvc.perform(
+				get("/users").param("size", String.valueOf(PAGE_SIZE)).param("sort", "id,desc"))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(PAGE_SIZE + 1);
+
+		User user = new User();
+		user.setUserName("budget-new-user");
+		queryRecorder.record(() -> this.mockMvc.perform(
+				post("/users")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(user)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(2)
+				.assertRowsAtMost(2);
+
+		// load, update, then the user's bets for the response
+		User existing = createUser(mockMvc, "budget-edit-user");
+		existing.setUserName("budget-edited-user");
+		queryRecorder.record(() -> this.mockMvc.perform(
+				put("/users/" + existing.getId())
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(requestBody(existing)))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(3)
+				.assertRowsAtMost(2);
+
+		// load, delete
+		queryRecorder.record(() -> this.mockMvc.perform(
+				delete("/users/" + existing.getId()))
+				.andExpect(status().isOk()))
+				.assertStatementsAtMost(2)
+				.assertRowsAtMost(2);
+	}
+}
@@ -0,0 +1,173 @@
+package com.hilow.hilowbackend.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class RateLimitFilterTests {
+
+	@Test
+	public void rejectsInvalidRules() {
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.ROUTES_PARAM, "GET /bets"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.ROUTES_PARAM, "/bets=1/1"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.ROUTES_PARAM, "GET /bets=abc"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.ROUTES_PARAM, "GET /bets=0/1"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "1/0"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.MAX_CONCURRENT_PARAM, "many"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.TRUSTED_PROXIES_PARAM, "proxy.local"));
+		assertThrows(ServletException.class, () -> filter(RateLimitFilter.TRUSTED_PROXIES_PARAM, "10.0.0.0/33"));
+	}
+
+	@Test
+	public void firstMatchingRouteWins() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.ROUTES_PARAM,
+				"GET /bets/**=0.001/1;GET /bets/*/comments=1000/1000");
+		assertEquals(200, perform(filter, request("GET", "/bets/1/comments", "alice")).getStatus());
+		assertEquals(429, perform(filter, request("GET", "/bets/1/comments", "alice")).getStatus());
+		// other methods fall through to the default limit
+		assertEquals(200, perform(filter, request("POST", "/bets/1/comments", "alice")).getStatus());
+	}
+
+	@Test
+	public void unmatchedRoutesUseDefaultLimit() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/2");
+		assertEquals(200, perform(filter, request("GET", "/users", "alice")).getStatus());
+		assertEquals(200, perform(filter, request("GET", "/users", "alice")).getStatus());
+		assertEquals(429, perform(filter, request("GET", "/users", "alice")).getStatus());
+	}
+
+	@Test
+	public void rateLimitedResponseHasRetryAfter() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.5/1");
+		perform(filter, request("GET", "/bets", "alice"));
+		MockHttpServletResponse response = perform(filter, request("GET", "/bets", "alice"));
+		assertEquals(429, response.getStatus());
+		long retryAfter = Long.parseLong(response.getHeader("Retry-After"));
+		assertTrue(retryAfter >= 1 && retryAfter <= 2);
+	}
+
+	@Test
+	public void bucketsArePerIdentity() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1");
+		assertEquals(200, perform(filter, request("GET", "/bets", "alice")).getStatus());
+		assertEquals(200, perform(filter, request("GET", "/bets", "bob")).getStatus());
+		assertEquals(429, perform(filter, request("GET", "/bets", "alice")).getStatus());
+	}
+
+	@Test
+	public void identityHeaderIsUsedWithoutCognitoIdentity() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1",
+				RateLimitFilter.IDENTITY_HEADER_PARAM, "X-Identity-Id");
+		assertEquals(200, perform(filter, headerRequest("X-Identity-Id", "alice")).getStatus());
+		assertEquals(200, perform(filter, headerRequest("X-Identity-Id", "bob")).getStatus());
+		assertEquals(429, perform(filter, headerRequest("X-Identity-Id", "alice")).getStatus());
+	}
+
+	@Test
+	public void forwardedForIsIgnoredWithoutTrustedProxies() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1");
+		assertEquals(200, perform(filter, forwardedRequest("203.0.113.9", "198.51.100.1")).getStatus());
+		assertEquals(429, perform(filter, forwardedRequest("203.0.113.9", "198.51.100.2")).getStatus());
+	}
+
+	@Test
+	public void forwardedForIsIgnoredFromUntrustedPeers() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1",
+				RateLimitFilter.TRUSTED_PROXIES_PARAM, "10.0.0.0/8");
+		assertEquals(200, perform(filter, forwardedRequest("203.0.113.9", "198.51.100.1")).getStatus());
+		assertEquals(429, perform(filter, forwardedRequest("203.0.113.9", "198.51.100.2")).getStatus());
+	}
+
+	@Test
+	public void trustedProxyForwardsClientAddress() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1",
+				RateLimitFilter.TRUSTED_PROXIES_PARAM, "10.0.0.0/8, 192.0.2.7");
+		assertEquals(200, perform(filter, forwardedRequest("10.1.2.3", "198.51.100.1")).getStatus());
+		assertEquals(200, perform(filter, forwardedRequest("10.1.2.3", "198.51.100.2")).getStatus());
+		// chained trusted proxies are skipped
+		assertEquals(429, perform(filter, forwardedRequest("10.1.2.3", "198.51.100.1, 192.0.2.7")).getStatus());
+	}
+
+	@Test
+	public void spoofedForwardedHopsAreIgnored() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "0.001/1",
+				RateLimitFilter.TRUSTED_PROXIES_PARAM, "10.0.0.0/8");
+		// the client wrote everything left of the hop our proxy appended
+		assertEquals(200, perform(filter, forwardedRequest("10.1.2.3", "1.1.1.1, 198.51.100.1")).getStatus());
+		assertEquals(429, perform(filter, forwardedRequest("10.1.2.3", "2.2.2.2, 198.51.100.1")).getStatus());
+		assertEquals(429, perform(filter, forwardedRequest("10.1.2.3", "10.9.9.9, 198.51.100.1")).getStatus());
+	}
+
+	@Test
+	public void shedsWhenConcurrencyCapIsReached() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.MAX_CONCURRENT_PARAM, "1");
+		MockHttpServletResponse nested = new MockHttpServletResponse();
+		FilterChain holdsPermit = (req, res) ->
+				filter.doFilter(request("GET", "/bets", "bob"), nested, new MockFilterChain());
+		MockHttpServletResponse outer = new MockHttpServletResponse();
+		filter.doFilter(request("GET", "/bets", "alice"), outer, holdsPermit);
+		assertEquals(200, outer.getStatus());
+		assertEquals(503, nested.getStatus());
+		assertNotNull(nested.getHeader("Retry-After"));
+	}
+
+	@Test
+	public void releasesPermitWhenChainThrows() throws Exception {
+		RateLimitFilter filter = filter(RateLimitFilter.MAX_CONCURRENT_PARAM, "1");
+		FilterChain fails = (req, res) -> {
+			throw new IllegalStateException("boom");
+		};
+		assertThrows(IllegalStateException.class, () ->
+				filter.doFilter(request("GET", "/bets", "alice"), new MockHttpServletResponse(), fails));
+		MockFilterChain chain = new MockFilterChain();
+		filter.doFilter(request("GET", "/bets", "alice"), new MockHttpServletResponse(), chain);
+		assertNotNull(chain.getRequest());
+	}
+
+	private static RateLimitFilter filter(String... params) throws ServletException {
+		MockFilterConfig config = new MockFilterConfig();
+		config.addInitParameter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "1000/1000");
+		for (int i = 0; i < params.length; i += 2) {
+			config.addInitParameter(params[i], params[i + 1]);
+		}
+		RateLimitFilter filter = new RateLimitFilter();
+		filter.init(config);
+		return filter;
+	}
+
+	private static MockHttpServletRequest request(String method, String uri, String cognitoIdentityId) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+		if (cognitoIdentityId != null) {
+			request.setAttribute(CognitoIdentityFilter.COGNITO_IDENTITY_ATTRIBUTE, cognitoIdentityId);
+		}
+		return request;
+	}
+
+	private static MockHttpServletRequest headerRequest(String header, String identity) {
+		MockHttpServletRequest request = request("GET", "/bets", null);
+		request.addHeader(header, identity);
+		return request;
+	}
+
+	private static MockHttpServletRequest forwardedRequest(String remoteAddr, String forwardedFor) {
+		MockHttpServletRequest request = request("GET", "/bets", null);
+		request.setRemoteAddr(remoteAddr);
+		request.addHeader("X-Forwarded-For", forwardedFor);
+		return request;
+	}
+
+	private static MockHttpServletResponse perform(RateLimitFilter filter, MockHttpServletRequest request)
+			throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		return response;
+	}
+}
@@ -0,0 +1,117 @@
+package com.hilow.hilowbackend.filter;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockFilterConfig;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class RequestCoalescingFilterTests {
+
+	@Test
+	public void followersDoNotHoldConcurrencyPermits() throws Exception {
+		// one slot for the leader, one for anything else
+		RateLimitFilter rateLimitFilter = rateLimitFilter("2");
+		RequestCoalescingFilter coalescingFilter = coalescingFilter();
+		CountDownLatch leaderRunning = new CountDownLatch(1);
+		CountDownLatch releaseLeader = new CountDownLatch(1);
+		AtomicInteger queries = new AtomicInteger();
+		Servlet servlet = new HttpServlet() {
+			@Override
+			protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+				if ("/bets".equals(request.getRequestURI())) {
+					queries.incrementAndGet();
+					leaderRunning.countDown();
+					try {
+						releaseLeader.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				response.setHeader("X-Query", "shared");
+				response.getWriter().write("ok");
+			}
+		};
+
+		MockHttpServletResponse leaderResponse = new MockHttpServletResponse();
+		Thread leader = new Thread(() -> perform(servlet, rateLimitFilter, coalescingFilter, "/bets", "alice",
+				leaderResponse));
+		leader.start();
+		assertTrue(leaderRunning.await(10, TimeUnit.SECONDS));
+
+		MockHttpServletResponse followerResponse = new MockHttpServletResponse();
+		Thread follower = new Thread(() -> perform(servlet, rateLimitFilter, coalescingFilter, "/bets", "bob",
+				followerResponse));
+		follower.start();
+		awaitWaiting(follower);
+
+		// would be shed if the waiting follower still held its slot
+		MockHttpServletResponse unrelated = new MockHttpServletResponse();
+		perform(servlet, rateLimitFilter, coalescingFilter, "/users", "carol", unrelated);
+		assertEquals(200, unrelated.getStatus());
+
+		releaseLeader.countDown();
+		leader.join(10_000);
+		follower.join(10_000);
+		assertEquals(1, queries.get());
+		assertEquals("ok", leaderResponse.getContentAsString());
+		assertEquals("ok", followerResponse.getContentAsString());
+		assertEquals("shared", followerResponse.getHeader("X-Query"));
+
+		// every slot was given back
+		MockHttpServletResponse after = new MockHttpServletResponse();
+		perform(servlet, rateLimitFilter, coalescingFilter, "/users", "carol", after);
+		assertEquals(200, after.getStatus());
+	}
+
+	private static void awaitWaiting(Thread thread) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (thread.getState() != Thread.State.TIMED_WAITING) {
+			assertTrue(System.currentTimeMillis() < deadline, "follower never waited on the leader");
+			Thread.sleep(5);
+		}
+	}
+
+	private static void perform(Servlet servlet, RateLimitFilter rateLimitFilter,
+								RequestCoalescingFilter coalescingFilter, String uri, String cognitoIdentityId,
+								MockHttpServletResponse response) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+		request.setAttribute(CognitoIdentityFilter.COGNITO_IDENTITY_ATTRIBUTE, cognitoIdentityId);
+		try {
+			new MockFilterChain(servlet, rateLimitFilter, coalescingFilter).doFilter(request, response);
+		} catch (IOException | ServletException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static RateLimitFilter rateLimitFilter(String maxConcurrent) throws ServletException {
+		MockFilterConfig config = new MockFilterConfig();
+		config.addInitParameter(RateLimitFilter.DEFAULT_LIMIT_PARAM, "1000/1000");
+		config.addInitParameter(RateLimitFilter.MAX_CONCURRENT_PARAM, maxConcurrent);
+		RateLimitFilter filter = new RateLimitFilter();
+		filter.init(config);
+		return filter;
+	}
+
+	private static RequestCoalescingFilter coalescingFilter() throws ServletException {
+		MockFilterConfig config = new MockFilterConfig();
+		config.addInitParameter(RequestCoalescingFilter.ROUTES_PARAM, "/bets");
+		config.addInitParameter(RequestCoalescingFilter.WAIT_MILLIS_PARAM, "10000");
+		RequestCoalescingFilter filter = new RequestCoalescingFilter();
+		filter.init(config);
+		return filter;
+	}
+}
@@ -0,0 +1,84 @@
+package com.hilow.hilowbackend.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class TokenBucketTests {
+
+	@Test
+	public void allowsBurstThenRejects() {
+		TokenBucket bucket = new TokenBucket(0.001, 3);
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertEquals(0, bucket.tryAcquire());
+		assertTrue(bucket.tryAcquire() > 0);
+	}
+
+	@Test
+	public void waitIsBoundedByEmissionInterval() {
+		TokenBucket bucket = new TokenBucket(1, 1);
+		assertEquals(0, bucket.tryAcquire());
+		long wait = bucket.tryAcquire();
+		assertTrue(wait > 0);
+		assertTrue(wait <= TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	public void refillsOverTime() throws Exception {
+		TokenBucket bucket = new TokenBucket(10, 1);
+		assertEquals(0, bucket.tryAcquire());
+		Thread.sleep(150);
+		assertEquals(0, bucket.tryAcquire());
+	}
+
+	@Test
+	public void isFullUntilTokensAreTaken() {
+		TokenBucket bucket = new TokenBucket(0.001, 2);
+		assertTrue(bucket.isFull());
+		bucket.tryAcquire();
+		assertFalse(bucket.isFull());
+	}
+
+	@Test
+	public void rejectsInvalidLimits() {
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+		assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+	}
+
+	@Test
+	public void grantsExactlyBurstUnderContention() throws Exception {
+		int burst = 1000;
+		int threads = 8;
+		TokenBucket bucket = new TokenBucket(0.001, burst);
+		AtomicInteger granted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int t = 0; t < threads; t++) {
+				executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < burst; i++) {
+						if (bucket.tryAcquire() == 0) {
+							granted.incrementAndGet();
+						}
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(burst, granted.get());
+	}
+}
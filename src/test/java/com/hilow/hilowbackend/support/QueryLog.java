@@ -0,0 +1,52 @@
+package com.hilow.hilowbackend.support;
+
+import java.util.List;
+
+/**
+ * Statements recorded for one piece of work, with assertions for statement and row budgets.
+ */
+public class QueryLog {
+    private final List<QueryRecorder.RecordedQuery> queries;
+
+    QueryLog(List<QueryRecorder.RecordedQuery> queries) {
+        this.queries = queries;
+    }
+
+    public List<QueryRecorder.RecordedQuery> getQueries() {
+        return queries;
+    }
+
+    public int statementCount() {
+        return queries.size();
+    }
+
+    public long rowCount() {
+        return queries.stream().mapToLong(QueryRecorder.RecordedQuery::getRows).sum();
+    }
+
+    public QueryLog assertStatementsAtMost(int maxStatements) {
+        if (statementCount() > maxStatements) {
+            throw new AssertionError("Expected at most " + maxStatements + " statements but "
+                    + statementCount() + " were issued" + dump());
+        }
+        return this;
+    }
+
+    public QueryLog assertRowsAtMost(long maxRows) {
+        if (rowCount() > maxRows) {
+            throw new AssertionError("Expected at most " + maxRows + " rows but "
+                    + rowCount() + " were read or written" + dump());
+        }
+        return this;
+    }
+
+    public String dump() {
+        StringBuilder out = new StringBuilder(":");
+        for (int i = 0; i < queries.size(); i++) {
+            QueryRecorder.RecordedQuery query = queries.get(i);
+            out.append(System.lineSeparator())
+                    .append(String.format("  %2d. [%d rows] %s", i + 1, query.getRows(), query.getSql()));
+        }
+        return out.toString();
+    }
+}
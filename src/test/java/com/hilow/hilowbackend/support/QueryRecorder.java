@@ -0,0 +1,65 @@
+package com.hilow.hilowbackend.support;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the SQL statements issued through the recording DataSource while {@link #record(Action)} runs.
+ * MockMvc executes requests on the calling thread, so one recording covers everything a request does, including
+ * lazy loads during JSON serialization.
+ */
+public class QueryRecorder {
+    private final List<RecordedQuery> queries = new ArrayList<>();
+    private volatile boolean recording;
+
+    public QueryLog record(Action action) throws Exception {
+        synchronized (queries) {
+            queries.clear();
+        }
+        recording = true;
+        try {
+            action.run();
+        } finally {
+            recording = false;
+        }
+        synchronized (queries) {
+            return new QueryLog(new ArrayList<>(queries));
+        }
+    }
+
+    RecordedQuery add(String sql) {
+        RecordedQuery query = new RecordedQuery(sql);
+        if (recording) {
+            synchronized (queries) {
+                queries.add(query);
+            }
+        }
+        return query;
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    public static class RecordedQuery {
+        private final String sql;
+        private long rows; // rows read through the result set plus rows reported as updated
+
+        RecordedQuery(String sql) {
+            this.sql = sql;
+        }
+
+        void addRows(long count) {
+            rows += count;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.hilow.hilowbackend.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+
+/**
+ * Import into a test to route the application DataSource through a {@link QueryRecorder}.
+ */
+@TestConfiguration
+public class QueryRecordingConfiguration {
+
+    @Bean
+    public static QueryRecorder queryRecorder() {
+        return new QueryRecorder();
+    }
+
+    @Bean
+    public static BeanPostProcessor recordingDataSourcePostProcessor(QueryRecorder queryRecorder) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource) {
+                    return RecordingDataSource.wrap((DataSource) bean, queryRecorder);
+                }
+                return bean;
+            }
+        };
+    }
+}
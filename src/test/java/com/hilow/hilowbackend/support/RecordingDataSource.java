@@ -0,0 +1,112 @@
+package com.hilow.hilowbackend.support;
+
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * JDK proxies around the DataSource, its connections, statements and result sets that report every executed
+ * statement and the rows it touched to a {@link QueryRecorder}.
+ */
+final class RecordingDataSource {
+
+    private RecordingDataSource() {
+    }
+
+    static DataSource wrap(DataSource dataSource, QueryRecorder recorder) {
+        return proxy(dataSource, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof Connection) {
+                return wrapConnection((Connection) result, recorder);
+            }
+            return result;
+        });
+    }
+
+    private static Connection wrapConnection(Connection connection, QueryRecorder recorder) {
+        return proxy(connection, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrapStatement((Statement) result, sql, recorder);
+            }
+            return result;
+        });
+    }
+
+    private static Statement wrapStatement(Statement statement, String preparedSql, QueryRecorder recorder) {
+        QueryRecorder.RecordedQuery[] current = new QueryRecorder.RecordedQuery[1];
+        return proxy(statement, (target, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                current[0] = recorder.add(sql);
+            }
+            Object result = invoke(target, method, args);
+            if (current[0] == null) {
+                return result;
+            }
+            if (result instanceof ResultSet && (name.startsWith("execute") || "getResultSet".equals(name))) {
+                return wrapResultSet((ResultSet) result, current[0]);
+            }
+            if (name.startsWith("execute") && result instanceof Number) {
+                current[0].addRows(Math.max(0, ((Number) result).longValue()));
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    current[0].addRows(Math.max(0, count));
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    current[0].addRows(Math.max(0, count));
+                }
+            }
+            return result;
+        });
+    }
+
+    private static ResultSet wrapResultSet(ResultSet resultSet, QueryRecorder.RecordedQuery query) {
+        return proxy(resultSet, (target, method, args) -> {
+            Object result = invoke(target, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                query.addRows(1);
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, Handler handler) {
+        Class<?>[] interfaces = ClassUtils.getAllInterfaces(target);
+        return (T) Proxy.newProxyInstance(RecordingDataSource.class.getClassLoader(), interfaces,
+                (proxy, method, args) -> {
+                    // proxies must stay equal to themselves, the target does not know about them
+                    if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+                        return proxy == args[0];
+                    }
+                    if ("hashCode".equals(method.getName()) && (args == null || args.length == 0)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return handler.handle(target, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Object target, Method method, Object[] args) throws Throwable;
+    }
+}
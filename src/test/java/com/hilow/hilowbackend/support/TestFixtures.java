@@ -0,0 +1,92 @@
+package com.hilow.hilowbackend.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.hilow.hilowbackend.model.Bet;
+import com.hilow.hilowbackend.model.Comment;
+import com.hilow.hilowbackend.model.User;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Creates users, bets and comments through the API and converts request and response bodies.
+ */
+public final class TestFixtures {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModule(new JavaTimeModule());
+
+    private TestFixtures() {
+    }
+
+    public static User createUser(MockMvc mockMvc, String userName) throws Exception {
+        User user = new User();
+        user.setUserName(userName);
+        return parseResponse(mockMvc.perform(
+                post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody(user)))
+                .andExpect(status().isOk())
+                .andReturn(), User.class);
+    }
+
+    /**
+     * Creates a bet owned by a new user named {@code <title>-user}.
+     */
+    public static Bet createBet(MockMvc mockMvc, String title, User... participants) throws Exception {
+        Bet bet = new Bet();
+        bet.setTitle(title);
+        bet.setCreator(createUser(mockMvc, title + "-user"));
+        bet.setParticipants(new HashSet<>(Arrays.asList(participants)));
+        bet.setConditionsDeadline(new Date());
+        bet.setPunishmentDeadline(new Date());
+        return parseResponse(mockMvc.perform(
+                post("/bets")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody(bet)))
+                .andExpect(status().isOk())
+                .andReturn(), Bet.class);
+    }
+
+    public static Comment createComment(MockMvc mockMvc, Long betId, String text) throws Exception {
+        Comment comment = new Comment();
+        comment.setText(text);
+        return parseResponse(mockMvc.perform(
+                post("/bets/" + betId + "/comments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestBody(comment)))
+                .andExpect(status().isOk())
+                .andReturn(), Comment.class);
+    }
+
+    public static String requestBody(Object request) {
+        try {
+            return MAPPER.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static <T> T parseResponse(MvcResult result, Class<T> responseClass) {
+        try {
+            String contentAsString = result.getResponse().getContentAsString();
+            return MAPPER.readValue(contentAsString, responseClass);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}